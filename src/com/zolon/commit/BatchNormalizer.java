@@ -0,0 +1,312 @@
+package com.zolon.commit;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.zolon.commit.NormalizeUtils.*;
+
+/**
+ * Rewrites existing commit messages into the template, for migrating old histories.
+ * <p>
+ * Reads NUL-terminated {@code <sha>\n<message>} records, as printed by
+ * {@code git log -z --format=%H%n%B}, and writes a rewrite map in the same format holding only the
+ * messages that changed:
+ * <pre>
+ * git log -z --format=%H%n%B | java -cp ... com.zolon.commit.BatchNormalizer &gt; rewrite-map
+ * </pre>
+ * Records are normalized in batches on a thread pool. At most {@code window} batches are in flight,
+ * so a slow writer holds the reader back, and batches are written in input order.
+ *
+ * @author manoo
+ */
+public class BatchNormalizer {
+    private static final Pattern CONVENTIONAL_FIRST_LINE_FORMAT = Pattern.compile("^([a-zA-Z]+)(\\(([^)]+)\\))?(!)?: (.+)");
+    private static final Pattern BREAKING_CHANGE = Pattern.compile("^BREAKING[ -]CHANGE: (.*)");
+    private static final Pattern UNWRAPPABLE = Pattern.compile("^(\\s|[-*+>] |\\d+[.)] |```)");
+    private static final String CODE_FENCE = "```";
+    private static final String RELATED_ISSUE_KEYWORD = StringUtils.removeEnd(RELATED_ISSUE_PREFIX, " ");
+    private static final int BATCH_SIZE = 512;
+
+    private final int threads;
+    private final int window;
+
+    BatchNormalizer(int threads, int window) {
+        this.threads = threads;
+        this.window = window;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        new BatchNormalizer(threads, threads * 4).run(System.in, System.out);
+    }
+
+    /**
+     * Rewrites the header into the template and moves broken changes and related issues after the
+     * details, in that order. A conventional {@code !} marker becomes a broken change.
+     * <p>
+     * Header and footers go through {@link CommitMessage#parse} and {@link CommitMessage#format}, as
+     * the dialog does. The details are wrapped paragraph by paragraph instead, since the dialog joins
+     * them into one: lists, indented and fenced blocks are kept as written. Trailers such as
+     * {@code Signed-off-by} follow the related issues, where git expects them.
+     *
+     * @return the rewritten message, or {@code null} if it is unchanged, or cannot be mapped to a
+     * {@link ChangeType}
+     */
+    static String normalize(String message) {
+        String text = toLF(message);
+        String[] lines = StringUtils.splitPreserveAllTokens(text, '\n');
+        if (lines.length == 0) {
+            return null;
+        }
+        String header = templateHeader(lines[0]);
+        if (header == null) {
+            return null;
+        }
+
+        List<List<String>> details = new ArrayList<>();
+        List<String> broken = new ArrayList<>();
+        List<String> related = new ArrayList<>();
+        List<String> trailers = new ArrayList<>();
+        List<List<String>> paragraphs = paragraphs(lines);
+        for (int pos = 0; pos < paragraphs.size(); pos++) {
+            List<String> paragraph = paragraphs.get(pos);
+            if (paragraph.stream().anyMatch(line -> line.trim().startsWith(CODE_FENCE))) {
+                details.add(paragraph);
+                continue;
+            }
+            boolean trailerBlock = pos == paragraphs.size() - 1 && isTrailerBlock(paragraph);
+            List<String> kept = new ArrayList<>();
+            boolean inBroken = false;
+            for (String line : paragraph) {
+                Matcher breaking = BREAKING_CHANGE.matcher(line);
+                if (line.startsWith(RELATED_ISSUE_KEYWORD)) {
+                    related.add(line);
+                    inBroken = false;
+                } else if (line.startsWith(BROKEN_CHANGES_PREFIX)) {
+                    broken.add(line);
+                    inBroken = true;
+                } else if (trailerBlock && breaking.find()) {
+                    broken.add(BROKEN_CHANGES_PREFIX + breaking.group(1));
+                    inBroken = true;
+                } else if (inBroken && !(trailerBlock && CommitMessage.TRAILER_FORMAT.matcher(line).matches())) {
+                    broken.add(line);
+                } else if (trailerBlock) {
+                    trailers.add(line);
+                    inBroken = false;
+                } else {
+                    kept.add(line);
+                }
+            }
+            if (!kept.isEmpty()) {
+                details.add(kept);
+            }
+        }
+
+        Matcher conventional = CONVENTIONAL_FIRST_LINE_FORMAT.matcher(lines[0]);
+        if (conventional.find() && conventional.group(4) != null && broken.isEmpty()) {
+            broken.add(BROKEN_CHANGES_PREFIX + conventional.group(5));
+        }
+
+        // footers are pre-wrapped, so that parse() keeps wrapping on
+        StringBuilder template = new StringBuilder(header).append('\n');
+        if (!broken.isEmpty()) {
+            template.append('\n').append(toLF(normalizeParagraph(String.join("\n", broken), true)));
+        }
+        for (String line : related) {
+            template.append('\n').append(RELATED_ISSUE_PREFIX).append(StringUtils.removeStart(line, RELATED_ISSUE_KEYWORD).trim());
+        }
+        CommitMessage parsed = CommitMessage.parse(template.toString());
+        if (parsed.getType() == null) {
+            return null;
+        }
+
+        List<String> wrapped = new ArrayList<>();
+        details.forEach(paragraph -> wrapped.add(wrap(paragraph)));
+        StringBuilder normal = new StringBuilder(toLF(CommitMessage.format(
+                normalizeHeader(parsed.getType(), parsed.getScope(), parsed.getSubject()),
+                String.join("\n\n", wrapped), parsed.getBroken(), parsed.getRelated())));
+        if (!trailers.isEmpty()) {
+            normal.append(broken.isEmpty() && related.isEmpty() ? "\n\n" : "\n").append(String.join("\n", trailers));
+        }
+        return normal.toString().equals(text) ? null : normal.toString();
+    }
+
+    /**
+     * @return the header in {@code [type](scope): subject} form, {@code null} if there is no known type
+     */
+    private static String templateHeader(String header) {
+        Matcher matcher = CommitMessage.COMMIT_FIRST_LINE_FORMAT.matcher(header);
+        if (matcher.find()) {
+            return ChangeType.fromLabel(matcher.group(1)) == null ? null : header;
+        }
+        matcher = CONVENTIONAL_FIRST_LINE_FORMAT.matcher(header);
+        if (!matcher.find()) {
+            return null;
+        }
+        ChangeType type = ChangeType.fromLabel(matcher.group(1).toLowerCase());
+        return type == null ? null : normalizeHeader(type, matcher.group(3), matcher.group(5));
+    }
+
+    /**
+     * Splits the body on blank lines, except inside fenced code blocks.
+     */
+    private static List<List<String>> paragraphs(String[] lines) {
+        List<List<String>> paragraphs = new ArrayList<>();
+        List<String> paragraph = new ArrayList<>();
+        boolean fenced = false;
+        for (int pos = 1; pos < lines.length; pos++) {
+            String line = lines[pos];
+            if (line.trim().startsWith(CODE_FENCE)) {
+                fenced = !fenced;
+            }
+            if (fenced || !line.trim().isEmpty()) {
+                paragraph.add(line);
+            } else if (!paragraph.isEmpty()) {
+                paragraphs.add(paragraph);
+                paragraph = new ArrayList<>();
+            }
+        }
+        if (!paragraph.isEmpty()) {
+            paragraphs.add(paragraph);
+        }
+        return paragraphs;
+    }
+
+    /**
+     * @return whether every line is a {@code Key: value} trailer, a continuation of one, or part of a
+     * broken change, like the trailer block git reads at the end of a message
+     */
+    private static boolean isTrailerBlock(List<String> paragraph) {
+        boolean inBroken = false;
+        for (String line : paragraph) {
+            if (line.startsWith(BROKEN_CHANGES_PREFIX) || BREAKING_CHANGE.matcher(line).find()) {
+                inBroken = true;
+            } else if (line.startsWith(RELATED_ISSUE_KEYWORD) || CommitMessage.TRAILER_FORMAT.matcher(line).matches()) {
+                inBroken = false;
+            } else if (!inBroken && !line.startsWith(" ") && !line.startsWith("\t")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the paragraph wrapped to {@link NormalizeUtils#MAX_LINE_LENGTH}, or as written if it
+     * holds a list, a quote, a code fence or indented lines
+     */
+    private static String wrap(List<String> paragraph) {
+        if (paragraph.stream().anyMatch(line -> UNWRAPPABLE.matcher(line).find())) {
+            return String.join("\n", paragraph);
+        }
+        return toLF(normalizeParagraph(String.join("\n", paragraph), true));
+    }
+
+    void run(InputStream input, OutputStream output) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ExecutorService writerExecutor = Executors.newSingleThreadExecutor();
+        BlockingQueue<Future<List<String>>> pending = new ArrayBlockingQueue<>(window);
+        Future<List<String>> end = CompletableFuture.completedFuture(null);
+
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                OutputStream out = new BufferedOutputStream(output, 1 << 16);
+                Future<List<String>> batch;
+                while ((batch = pending.take()) != end) {
+                    for (String record : batch.get()) {
+                        out.write(record.getBytes(StandardCharsets.UTF_8));
+                        out.write(0);
+                    }
+                }
+                out.flush();
+            } catch (IOException | InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }, writerExecutor);
+
+        try {
+            byte[] buffer = new byte[1 << 16];
+            ByteArrayOutputStream record = new ByteArrayOutputStream(1024);
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != 0) {
+                        continue;
+                    }
+                    record.write(buffer, start, i - start);
+                    start = i + 1;
+                    batch.add(record.toString(StandardCharsets.UTF_8.name()));
+                    record.reset();
+                    if (batch.size() == BATCH_SIZE) {
+                        enqueue(pending, submit(executor, batch), writer);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                record.write(buffer, start, read - start);
+            }
+            if (record.size() > 0) {
+                batch.add(record.toString(StandardCharsets.UTF_8.name()));
+            }
+            if (!batch.isEmpty()) {
+                enqueue(pending, submit(executor, batch), writer);
+            }
+            enqueue(pending, end, writer);
+            writer.join();
+        } finally {
+            executor.shutdownNow();
+            writerExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Blocks while {@code window} batches are pending, unless the writer has already failed.
+     */
+    private static void enqueue(BlockingQueue<Future<List<String>>> pending, Future<List<String>> batch,
+                                CompletableFuture<Void> writer) throws InterruptedException {
+        while (!pending.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                writer.join();
+            }
+        }
+    }
+
+    private static Future<List<String>> submit(ExecutorService executor, List<String> records) {
+        return executor.submit(() -> {
+            List<String> rewrites = new ArrayList<>();
+            for (String record : records) {
+                int newLine = record.indexOf('\n');
+                if (newLine <= 0) {
+                    continue;
+                }
+                try {
+                    String message = normalize(record.substring(newLine + 1));
+                    if (message != null) {
+                        rewrites.add(record.substring(0, newLine) + "\n" + message);
+                    }
+                } catch (RuntimeException e) {
+                    // leave messages the template cannot represent as they are
+                }
+            }
+            return rewrites;
+        });
+    }
+}
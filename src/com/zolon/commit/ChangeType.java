@@ -34,6 +34,18 @@ public enum ChangeType {
         return this.name().toLowerCase();
     }
 
+    /**
+     * @return the type whose {@link #label()} is {@code label}, or {@code null} if there is none
+     */
+    public static ChangeType fromLabel(String label) {
+        for (ChangeType type : values()) {
+            if (type.label().equals(label)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return String.format("%-12s - %s", this.label(), this.description);
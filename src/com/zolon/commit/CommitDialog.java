@@ -5,6 +5,8 @@ import com.intellij.openapi.ui.DialogWrapper;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Base from <a href="https://github.com/MobileTribe/commit-template-idea-plugin">MobileTribe/commit-template-idea-plugin</a>
@@ -14,12 +16,16 @@ import javax.swing.*;
  */
 public class CommitDialog extends DialogWrapper {
 
+    private final CommitDialogModel model;
     private final CommitPanel panel;
+    private final long actionStartedNanos;
 
-    CommitDialog(@Nullable Project project, CommitMessage commitMessage) {
+    CommitDialog(@Nullable Project project, CompletableFuture<CommitMessage> commitMessage, long actionStartedNanos) {
         super(project);
         assert project != null;
-        panel = new CommitPanel(project, commitMessage);
+        this.model = CommitDialogModel.getInstance(project);
+        this.actionStartedNanos = actionStartedNanos;
+        panel = new CommitPanel(model, commitMessage);
         setTitle("Commit");
         setOKButtonText("OK");
         init();
@@ -28,7 +34,20 @@ public class CommitDialog extends DialogWrapper {
     @Nullable
     @Override
     protected JComponent createCenterPanel() {
-        return panel.getMainPanel();
+        JPanel center = new JPanel(new BorderLayout()) {
+            private boolean painted;
+
+            @Override
+            public void paint(Graphics g) {
+                super.paint(g);
+                if (!painted) {
+                    painted = true;
+                    model.firstPaint(actionStartedNanos);
+                }
+            }
+        };
+        center.add(panel.getMainPanel(), BorderLayout.CENTER);
+        return center;
     }
 
     CommitMessage getCommitMessage() {
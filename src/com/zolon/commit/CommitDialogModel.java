@@ -0,0 +1,95 @@
+package com.zolon.commit;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+
+import javax.swing.*;
+import java.io.File;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-project state shared by every {@link CommitDialog}, so opening the dialog does no git call
+ * and no parsing on the EDT.
+ * <p>
+ * The history scan is started once when the commit toolbar first shows up, and refreshed when a
+ * dialog opens after {@link #HISTORY_TTL_MILLIS}; it runs on a pooled thread and the dialog binds
+ * scopes whenever it completes. The time from the action to the first paint of the dialog is
+ * logged at debug level.
+ *
+ * @author manoo
+ */
+public class CommitDialogModel {
+    private static final Logger LOG = Logger.getInstance(CommitDialogModel.class);
+    private static final long HISTORY_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final File workingDirectory;
+    private final ChangeType[] changeTypes = ChangeType.values();
+    private final Executor executor = command -> ApplicationManager.getApplication().executeOnPooledThread(command);
+
+    private CompletableFuture<GitLogQuery.Result> history;
+    private long historyStartedAt;
+
+    public CommitDialogModel(Project project) {
+        this.workingDirectory = new File(Objects.requireNonNull(project.getBasePath()));
+    }
+
+    static CommitDialogModel getInstance(Project project) {
+        return ServiceManager.getService(project, CommitDialogModel.class);
+    }
+
+    File getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    ComboBoxModel<ChangeType> createChangeTypeModel() {
+        return new DefaultComboBoxModel<>(changeTypes);
+    }
+
+    /**
+     * Starts the first history scan, if none has been started yet.
+     */
+    synchronized void warmUp() {
+        if (history == null) {
+            startHistory();
+        }
+    }
+
+    /**
+     * Called when a dialog opens.
+     *
+     * @return the latest history scan; a stale one is still returned if done, while a fresh scan
+     * is started for the next dialog
+     */
+    synchronized CompletableFuture<GitLogQuery.Result> history() {
+        CompletableFuture<GitLogQuery.Result> current = history;
+        if (current == null || System.currentTimeMillis() - historyStartedAt > HISTORY_TTL_MILLIS) {
+            startHistory();
+        }
+        return current != null && current.isDone() ? current : history;
+    }
+
+    private void startHistory() {
+        historyStartedAt = System.currentTimeMillis();
+        history = CompletableFuture.supplyAsync(() -> new GitLogQuery(workingDirectory).execute(), executor);
+    }
+
+    CompletableFuture<CommitMessage> parse(String message) {
+        return CompletableFuture.supplyAsync(() -> CommitMessage.parse(message), executor);
+    }
+
+    /**
+     * Logs the time from {@link CreateCommitAction} to the first paint of the dialog; enable debug
+     * logging for this class to read it from idea.log.
+     */
+    void firstPaint(long actionStartedNanos) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Commit dialog first paint after "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - actionStartedNanos) + " ms");
+        }
+    }
+}
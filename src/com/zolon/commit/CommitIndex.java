@@ -0,0 +1,82 @@
+package com.zolon.commit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Commits seen by {@link GitLogQuery}, searchable by SHA prefix or by subject substring.
+ * <p>
+ * Filled line by line while the history is scanned, newest commit first, so lookups need no
+ * further git call.
+ *
+ * @author manoo
+ */
+class CommitIndex {
+    private static final Pattern SHA_PREFIX = Pattern.compile("^[0-9a-f]{4,40}$");
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<String> lowerSubjects = new ArrayList<>();
+    private final TreeMap<String, Integer> bySha = new TreeMap<>();
+
+    static class Entry {
+        private final String sha;
+        private final String subject;
+
+        Entry(String sha, String subject) {
+            this.sha = sha;
+            this.subject = subject;
+        }
+
+        String getSha() {
+            return sha;
+        }
+
+        String getSubject() {
+            return subject;
+        }
+
+        @Override
+        public String toString() {
+            return sha.substring(0, Math.min(8, sha.length())) + " " + subject;
+        }
+    }
+
+    void add(String sha, String subject) {
+        bySha.put(sha, entries.size());
+        entries.add(new Entry(sha, subject));
+        lowerSubjects.add(subject.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return at most {@code limit} commits whose SHA starts with {@code query}, then those whose
+     * subject contains it, newest first
+     */
+    List<Entry> find(String query, int limit) {
+        String text = NormalizeUtils.normalize(query).toLowerCase(Locale.ROOT);
+        Set<Integer> found = new LinkedHashSet<>();
+        if (text.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        if (SHA_PREFIX.matcher(text).matches()) {
+            bySha.subMap(text, true, text + Character.MAX_VALUE, false).values().stream()
+                    .sorted()
+                    .limit(limit)
+                    .forEach(found::add);
+        }
+        for (int i = 0; i < lowerSubjects.size() && found.size() < limit; i++) {
+            if (lowerSubjects.get(i).contains(text)) {
+                found.add(i);
+            }
+        }
+
+        List<Entry> result = new ArrayList<>(found.size());
+        found.forEach(i -> result.add(entries.get(i)));
+        return result;
+    }
+}
@@ -18,6 +18,8 @@ import static org.apache.commons.lang.StringUtils.trimToEmpty;
 class CommitMessage {
 
     public static final Pattern COMMIT_FIRST_LINE_FORMAT = Pattern.compile("^\\[([a-z]+)](\\((.+)\\))?: (.+)");
+    /** git trailer, such as {@code Signed-off-by: Name <email>} */
+    public static final Pattern TRAILER_FORMAT = Pattern.compile("^[A-Za-z][A-Za-z0-9-]*: \\S.*");
 
     // header
     private ChangeType type;
@@ -64,11 +66,18 @@ class CommitMessage {
      */
     @Override
     public String toString() {
+        return format(normalizeHeader(type, scope, subject), details, broken, related);
+    }
+
+    /**
+     * Assembles already normalized sections, shared with {@link CommitPreview}.
+     */
+    static String format(String header, String details, String broken, String related) {
         StringBuilder builder = new StringBuilder();
         ///
         /// header
         ///
-        builder.append(normalizeHeader(type, scope, subject))
+        builder.append(header)
                 .append(System.lineSeparator());
         ///
         /// body
@@ -112,7 +121,10 @@ class CommitMessage {
             return new CommitMessage(message);
         }
 
-        ChangeType type = ChangeType.valueOf(matcher.group(1).toUpperCase());
+        ChangeType type = ChangeType.fromLabel(matcher.group(1));
+        if (type == null) {
+            return new CommitMessage(message);
+        }
         String scope = matcher.group(3);
         String subject = matcher.group(4);
         boolean wrap = true;
@@ -180,6 +192,25 @@ class CommitMessage {
         return new CommitMessage(type, scope, subject, details, broken, related, wrap);
     }
 
+    /**
+     * Reverts {@code message} following the Angular convention: the reverted header becomes the
+     * subject, and the body says which commit is reverted. Related issues are carried over.
+     * <p>
+     * When the reverted header does not fit in {@link NormalizeUtils#MAX_LINE_LENGTH}, only its
+     * subject is kept, abbreviated if still too long; the body names the commit anyway.
+     */
+    public static CommitMessage revert(String sha, String message, boolean wrapText) {
+        CommitMessage reverted = parse(message);
+        String subject = StringUtils.substringBefore(toLF(message), "\n");
+        int room = MAX_LINE_LENGTH - normalizeHeader(ChangeType.REVERT, null, EMPTY_STR).length();
+        if (subject.length() > room && reverted.getType() != null) {
+            subject = reverted.getSubject();
+        }
+        subject = StringUtils.abbreviate(subject, room);
+        return new CommitMessage(ChangeType.REVERT, null, subject,
+                REVERTS_COMMIT_PREFIX + sha + ".", null, reverted.getRelated(), wrapText);
+    }
+
     public ChangeType getType() {
         return type;
     }
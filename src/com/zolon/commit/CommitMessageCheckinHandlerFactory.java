@@ -0,0 +1,36 @@
+package com.zolon.commit;
+
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vcs.CheckinProjectPanel;
+import com.intellij.openapi.vcs.changes.CommitContext;
+import com.intellij.openapi.vcs.checkin.CheckinHandler;
+import com.intellij.openapi.vcs.checkin.CheckinHandlerFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Stops commits whose message breaks the template before they reach the server hook.
+ *
+ * @author manoo
+ */
+public class CommitMessageCheckinHandlerFactory extends CheckinHandlerFactory {
+
+    @NotNull
+    @Override
+    public CheckinHandler createHandler(@NotNull CheckinProjectPanel panel, @NotNull CommitContext commitContext) {
+        return new CheckinHandler() {
+            @Override
+            public ReturnResult beforeCheckin() {
+                CommitMessageValidator.Validation validation = CommitMessageValidator.SHARED.validate(panel.getCommitMessage());
+                if (validation.isValid()) {
+                    return ReturnResult.COMMIT;
+                }
+
+                String message = "The commit message does not follow the template:\n\n- "
+                        + String.join("\n- ", validation.getProblems());
+                int answer = Messages.showOkCancelDialog(panel.getProject(), message, "Commit Template",
+                        "Commit Anyway", "Cancel", Messages.getWarningIcon());
+                return answer == Messages.OK ? ReturnResult.COMMIT : ReturnResult.CANCEL;
+            }
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.zolon.commit;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+
+import static com.zolon.commit.NormalizeUtils.*;
+
+/**
+ * Checks a commit message against the template.
+ * <p>
+ * One instance is shared by the dialog, which validates on every debounced preview update, and by
+ * the checkin handler, so a check is a single pass over the lines and never parses or wraps the
+ * message. Results are cached by text hash: re-rendering unchanged text, and checking in the
+ * message the dialog just produced, cost a lookup.
+ *
+ * @author manoo
+ */
+class CommitMessageValidator {
+    static final CommitMessageValidator SHARED = new CommitMessageValidator();
+
+    private static final int CACHE_SIZE = 64;
+    private static final String RELATED_ISSUE_KEYWORD = StringUtils.removeEnd(RELATED_ISSUE_PREFIX, " ");
+
+    private final Map<Integer, Validation> cache = new LinkedHashMap<Integer, Validation>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Validation> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    static class Validation {
+        private final String text;
+        private final boolean parsable;
+        private final List<String> problems;
+        private CommitMessage message;
+
+        Validation(String text, boolean parsable, List<String> problems) {
+            this.text = text;
+            this.parsable = parsable;
+            this.problems = problems;
+        }
+
+        boolean isValid() {
+            return problems.isEmpty();
+        }
+
+        /**
+         * @return the parsed message, parsed on first call, {@code null} if the header could not be parsed
+         */
+        synchronized CommitMessage getMessage() {
+            if (message == null && parsable) {
+                message = CommitMessage.parse(text);
+            }
+            return message;
+        }
+
+        List<String> getProblems() {
+            return problems;
+        }
+    }
+
+    synchronized Validation validate(String message) {
+        String text = toLF(message);
+        int hash = text.hashCode();
+        Validation cached = cache.get(hash);
+        if (cached != null && cached.text.equals(text)) {
+            return cached;
+        }
+        Validation validation = check(text);
+        cache.put(hash, validation);
+        return validation;
+    }
+
+    private static Validation check(String text) {
+        List<String> problems = new ArrayList<>();
+        // lines are walked by offset rather than split: the dialog validates on every edit
+        int end = text.indexOf('\n');
+        if (end < 0) {
+            end = text.length();
+        }
+        String header = text.substring(0, end);
+
+        ///
+        /// header
+        ///
+        Matcher matcher = CommitMessage.COMMIT_FIRST_LINE_FORMAT.matcher(header);
+        if (!matcher.find()) {
+            problems.add("Header must follow '[<type>](<scope>): <subject>'");
+            return new Validation(text, false, problems);
+        }
+        if (ChangeType.fromLabel(matcher.group(1)) == null) {
+            problems.add("Unknown type '" + matcher.group(1) + "', expected one of: " + Arrays.stream(ChangeType.values())
+                    .map(ChangeType::label)
+                    .collect(Collectors.joining(", ")));
+            return new Validation(text, false, problems);
+        }
+        if (header.length() > MAX_LINE_LENGTH) {
+            problems.add("Header is " + header.length() + " characters long, keep it within " + MAX_LINE_LENGTH);
+        }
+        if (end + 1 < text.length() && text.charAt(end + 1) != '\n') {
+            problems.add("Header must be followed by a blank line");
+        }
+
+        ///
+        /// footer
+        ///
+        boolean related = false;
+        int lineNumber = 1;
+        while (end < text.length()) {
+            int start = end + 1;
+            end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            lineNumber++;
+            if (text.startsWith(RELATED_ISSUE_PREFIX, start)) {
+                related = true;
+                if (StringUtils.isBlank(text.substring(start + RELATED_ISSUE_PREFIX.length(), end))) {
+                    problems.add("Line " + lineNumber + ": related issue is empty");
+                }
+            } else if (text.startsWith(RELATED_ISSUE_KEYWORD, start)) {
+                problems.add("Line " + lineNumber + ": related issue must be written '" + RELATED_ISSUE_PREFIX + "<issue>'");
+            } else if (related && text.startsWith(BROKEN_CHANGES_PREFIX, start)) {
+                problems.add("Line " + lineNumber + ": broken change must come before related issues");
+            } else if (related && end > start
+                    && !CommitMessage.TRAILER_FORMAT.matcher(text.substring(start, end)).matches()) {
+                problems.add("Line " + lineNumber + ": only '" + RELATED_ISSUE_PREFIX + "' lines and git trailers may follow related issues");
+            }
+        }
+
+        return new Validation(text, true, problems);
+    }
+}
@@ -1,11 +1,24 @@
 package com.zolon.commit;
 
-import com.intellij.openapi.project.Project;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.ui.popup.PopupStep;
+import com.intellij.openapi.ui.popup.util.BaseListPopupStep;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.JBColor;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.JTextComponent;
 import java.io.File;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Base from <a href="https://github.com/MobileTribe/commit-template-idea-plugin">MobileTribe/commit-template-idea-plugin</a>
@@ -14,6 +27,10 @@ import java.util.Optional;
  * @author manoo
  */
 public class CommitPanel {
+    private static final Logger LOG = Logger.getInstance(CommitPanel.class);
+    private static final int PREVIEW_DELAY_MILLIS = 200;
+    private static final int MAX_REVERT_TARGETS = 20;
+
     private JPanel mainPanel;
     private JComboBox<String> scope;
     private JTextField subject;
@@ -22,25 +39,81 @@ public class CommitPanel {
     private JTextField related;
     private JCheckBox wrapText;
     private JComboBox<ChangeType> changeType;
+    private JTextArea preview;
+    private JLabel problems;
+    private JButton summarizeStaged;
+    private JButton findRevertTarget;
 
-    CommitPanel(Project project, CommitMessage commitMessage) {
-        File workingDirectory = new File(Objects.requireNonNull(project.getBasePath()));
-        GitLogQuery.Result result = new GitLogQuery(workingDirectory).execute();
-        if (result.isSuccess()) {
-            scope.addItem(""); // no value by default
-            result.getScopes().forEach(scope::addItem);
-        }
+    private CommitIndex commitIndex = new CommitIndex();
+    private GitLogQuery.Window historyWindow;
+    private String stagedSummary;
 
-        if (commitMessage != null) {
-            restoreValuesFromParsedCommitMessage(commitMessage);
-        }
-        for (ChangeType type : ChangeType.values()) {
-            changeType.addItem(type);
+    private final CommitPreview commitPreview = new CommitPreview();
+    private final Timer previewTimer = new Timer(PREVIEW_DELAY_MILLIS, e -> updatePreview());
+
+    CommitPanel(CommitDialogModel model, CompletableFuture<CommitMessage> commitMessage) {
+        File workingDirectory = model.getWorkingDirectory();
+        summarizeStaged.addActionListener(e -> summarizeStagedChange(workingDirectory));
+        changeType.addActionListener(e -> findRevertTarget.setEnabled(getSelectedChangeType() == ChangeType.REVERT));
+        findRevertTarget.addActionListener(e -> showRevertTargets(workingDirectory));
+
+        changeType.setModel(model.createChangeTypeModel());
+        changeType.setSelectedItem(ChangeType.FEAT);
+
+        // both usually complete before the dialog is shown; otherwise they are bound when ready
+        whenReady(model.history(), "commit history", this::restoreHistory);
+        whenReady(commitMessage, "commit message", parsed -> {
+            // a late parse must not overwrite what the user has typed meanwhile
+            if (parsed != null && isUntouched()) {
+                restoreValuesFromParsedCommitMessage(parsed);
+                changeType.setSelectedItem(Optional.ofNullable(parsed.getType()).orElse(ChangeType.FEAT));
+            }
+        });
+
+        installPreview();
+    }
+
+    /**
+     * Runs {@code action} with the value on the EDT, right away if the future is already done. A
+     * failure is logged and leaves the fields as they are.
+     */
+    private static <T> void whenReady(CompletableFuture<T> future, String what, Consumer<T> action) {
+        boolean done = future.isDone();
+        future.whenComplete((value, error) -> {
+            Runnable apply = () -> {
+                if (error != null) {
+                    LOG.warn("Could not load the " + what, error);
+                } else {
+                    action.accept(value);
+                }
+            };
+            if (done) {
+                apply.run();
+            } else {
+                ApplicationManager.getApplication().invokeLater(apply, ModalityState.any());
+            }
+        });
+    }
+
+    private boolean isUntouched() {
+        return getSelectedChangeType() == ChangeType.FEAT
+                && StringUtil.isEmptyOrSpaces(Objects.toString(scope.getEditor().getItem(), ""))
+                && subject.getText().trim().isEmpty()
+                && details.getText().trim().isEmpty()
+                && broken.getText().trim().isEmpty()
+                && related.getText().trim().isEmpty();
+    }
+
+    private void restoreHistory(GitLogQuery.Result result) {
+        if (!result.isSuccess()) {
+            return;
         }
-        ChangeType selectType = Optional.ofNullable(commitMessage)
-                .map(CommitMessage::getType)
-                .orElse(ChangeType.FEAT);
-        changeType.setSelectedItem(selectType);
+        Object selected = scope.getEditor().getItem();
+        scope.addItem(""); // no value by default
+        result.getScopes().forEach(scope::addItem);
+        scope.setSelectedItem(selected);
+        commitIndex = result.getIndex();
+        historyWindow = result.getWindow();
     }
 
     JPanel getMainPanel() {
@@ -63,6 +136,130 @@ public class CommitPanel {
         return (ChangeType) changeType.getSelectedItem();
     }
 
+    private void summarizeStagedChange(File workingDirectory) {
+        summarizeStaged.setEnabled(false);
+        ModalityState modalityState = ModalityState.stateForComponent(mainPanel);
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            StagedDiffQuery.Result result = new StagedDiffQuery(workingDirectory).execute();
+            ApplicationManager.getApplication().invokeLater(() -> {
+                summarizeStaged.setEnabled(true);
+                String summary = result.getSummary();
+                if (!result.isSuccess() || summary.isEmpty()) {
+                    return;
+                }
+                // a second click refreshes the summary instead of adding another one
+                String text = details.getText();
+                int previous = stagedSummary == null ? -1 : text.lastIndexOf(stagedSummary);
+                if (previous >= 0) {
+                    details.replaceRange(summary, previous, previous + stagedSummary.length());
+                } else if (text.trim().isEmpty()) {
+                    details.setText(summary);
+                } else {
+                    details.append(System.lineSeparator() + summary);
+                }
+                stagedSummary = summary;
+            }, modalityState);
+        });
+    }
+
+    private void showRevertTargets(File workingDirectory) {
+        List<CommitIndex.Entry> entries = commitIndex.find(subject.getText(), MAX_REVERT_TARGETS);
+        if (entries.isEmpty()) {
+            JBPopupFactory.getInstance()
+                    .createMessage(noRevertTargetMessage())
+                    .showUnderneathOf(findRevertTarget);
+            return;
+        }
+        JBPopupFactory.getInstance().createListPopup(new BaseListPopupStep<CommitIndex.Entry>("Revert Commit", entries) {
+            @Override
+            public PopupStep onChosen(CommitIndex.Entry selectedValue, boolean finalChoice) {
+                revert(workingDirectory, selectedValue);
+                return FINAL_CHOICE;
+            }
+        }).showUnderneathOf(findRevertTarget);
+    }
+
+    private String noRevertTargetMessage() {
+        if (historyWindow == null) {
+            return "History is still being scanned, try again in a moment";
+        }
+        return "No commit matches among the " + historyWindow.getScanned() + " scanned from "
+                + historyWindow.describe() + "; older commits are not indexed";
+    }
+
+    private void revert(File workingDirectory, CommitIndex.Entry entry) {
+        ModalityState modalityState = ModalityState.stateForComponent(mainPanel);
+        boolean wrap = wrapText.isSelected();
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            String message = new GitLogQuery(workingDirectory).message(entry.getSha());
+            CommitMessage revert = CommitMessage.revert(entry.getSha(),
+                    message == null ? entry.getSubject() : message, wrap);
+            ApplicationManager.getApplication().invokeLater(
+                    () -> restoreValuesFromParsedCommitMessage(revert), modalityState);
+        });
+    }
+
+    private void installPreview() {
+        // coalesce keystrokes: the preview is rendered once typing pauses
+        previewTimer.setRepeats(false);
+        DocumentAdapter listener = new DocumentAdapter() {
+            @Override
+            protected void textChanged(DocumentEvent e) {
+                previewTimer.restart();
+            }
+        };
+        subject.getDocument().addDocumentListener(listener);
+        details.getDocument().addDocumentListener(listener);
+        broken.getDocument().addDocumentListener(listener);
+        related.getDocument().addDocumentListener(listener);
+        ((JTextComponent) scope.getEditor().getEditorComponent()).getDocument().addDocumentListener(listener);
+        scope.addActionListener(e -> previewTimer.restart());
+        changeType.addActionListener(e -> previewTimer.restart());
+        wrapText.addActionListener(e -> previewTimer.restart());
+
+        updatePreview();
+    }
+
+    private void updatePreview() {
+        commitPreview.setHeader(getSelectedChangeType(), Objects.toString(scope.getEditor().getItem(), ""), subject.getText());
+        commitPreview.setDetails(details.getText(), wrapText.isSelected());
+        commitPreview.setBroken(broken.getText(), wrapText.isSelected());
+        commitPreview.setRelated(related.getText());
+        String text = NormalizeUtils.toLF(commitPreview.render());
+        showPreview(text);
+        showProblems(CommitMessageValidator.SHARED.validate(text));
+    }
+
+    private void showProblems(CommitMessageValidator.Validation validation) {
+        if (validation.isValid()) {
+            problems.setText("");
+            return;
+        }
+        StringBuilder builder = new StringBuilder("<html>");
+        for (String problem : validation.getProblems()) {
+            builder.append(StringUtil.escapeXml(problem)).append("<br>");
+        }
+        problems.setForeground(JBColor.RED);
+        problems.setText(builder.append("</html>").toString());
+    }
+
+    /**
+     * Replaces only the part of the preview that differs, so large previews keep their scroll position.
+     */
+    private void showPreview(String text) {
+        String old = preview.getText();
+        int max = Math.min(old.length(), text.length());
+        int prefix = 0;
+        while (prefix < max && old.charAt(prefix) == text.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix && old.charAt(old.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+            suffix++;
+        }
+        preview.replaceRange(text.substring(prefix, text.length() - suffix), prefix, old.length() - suffix);
+    }
+
     private void restoreValuesFromParsedCommitMessage(CommitMessage commitMessage) {
         changeType.setSelectedItem(commitMessage.getType());
         scope.setSelectedItem(commitMessage.getScope());
@@ -0,0 +1,77 @@
+package com.zolon.commit;
+
+import java.util.Objects;
+
+import static com.zolon.commit.NormalizeUtils.*;
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+/**
+ * Renders the same text as {@link CommitMessage#toString()} while the dialog is being edited.
+ * <p>
+ * Each section (header, details, broken, related) keeps its last input and output and is only
+ * normalized again when its input changed; long paragraphs go through an {@link IncrementalWrapper}
+ * so an edit only re-wraps the lines around it.
+ *
+ * @author manoo
+ */
+class CommitPreview {
+
+    private final IncrementalWrapper detailsWrapper = new IncrementalWrapper(MAX_LINE_LENGTH);
+    private final IncrementalWrapper brokenWrapper = new IncrementalWrapper(MAX_LINE_LENGTH);
+
+    private String header = EMPTY_STR;
+    private String details = EMPTY_STR;
+    private String broken = EMPTY_STR;
+    private String related = EMPTY_STR;
+
+    private String detailsInput;
+    private boolean detailsWrap;
+    private String brokenInput;
+    private boolean brokenWrap;
+    private String relatedInput;
+
+    void setHeader(ChangeType type, String scope, String subject) {
+        header = type == null ? EMPTY_STR : normalizeHeader(type, normalize(scope), normalize(subject));
+    }
+
+    void setDetails(String input, boolean wrapText) {
+        if (Objects.equals(input, detailsInput) && wrapText == detailsWrap) {
+            return;
+        }
+        detailsInput = input;
+        detailsWrap = wrapText;
+
+        String normal = normalizeParagraph(input);
+        details = wrapText ? detailsWrapper.wrap(normal) : normal;
+    }
+
+    void setBroken(String input, boolean wrapText) {
+        if (Objects.equals(input, brokenInput) && wrapText == brokenWrap) {
+            return;
+        }
+        brokenInput = input;
+        brokenWrap = wrapText;
+
+        String normal = normalize(input);
+        if (isBlank(normal)) {
+            broken = EMPTY_STR;
+        } else if (normal.startsWith(BROKEN_CHANGES_PREFIX)) {
+            broken = normal;
+        } else {
+            String paragraph = normalizeParagraph(BROKEN_CHANGES_PREFIX + normal);
+            broken = wrapText ? brokenWrapper.wrap(paragraph) : paragraph;
+        }
+    }
+
+    void setRelated(String input) {
+        if (Objects.equals(input, relatedInput)) {
+            return;
+        }
+        relatedInput = input;
+        related = normalizeIssues(input);
+    }
+
+    String render() {
+        return CommitMessage.format(header, details, broken, related);
+    }
+}
@@ -3,6 +3,7 @@ package com.zolon.commit;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.openapi.vcs.CheckinProjectPanel;
 import com.intellij.openapi.vcs.CommitMessageI;
@@ -11,6 +12,8 @@ import com.intellij.openapi.vcs.ui.Refreshable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Base from <a href="https://github.com/MobileTribe/commit-template-idea-plugin">MobileTribe/commit-template-idea-plugin</a>
  *
@@ -19,13 +22,25 @@ import org.jetbrains.annotations.Nullable;
  */
 public class CreateCommitAction extends AnAction implements DumbAware {
 
+    @Override
+    public void update(@NotNull AnActionEvent actionEvent) {
+        // warm up the history scan once, as soon as the commit toolbar shows up
+        Project project = actionEvent.getProject();
+        if (project != null && project.getBasePath() != null) {
+            CommitDialogModel.getInstance(project).warmUp();
+        }
+    }
+
     @Override
     public void actionPerformed(@NotNull AnActionEvent actionEvent) {
+        long startedNanos = System.nanoTime();
         CommitMessageI commitPanel = getCommitPanel(actionEvent);
         if (commitPanel == null) return;
+        Project project = actionEvent.getProject();
+        if (project == null) return;
 
-        CommitMessage commitMessage = parseExistingCommitMessage(commitPanel);
-        CommitDialog dialog = new CommitDialog(actionEvent.getProject(), commitMessage);
+        CompletableFuture<CommitMessage> commitMessage = parseExistingCommitMessage(project, commitPanel);
+        CommitDialog dialog = new CommitDialog(project, commitMessage, startedNanos);
         dialog.show();
 
         if (dialog.getExitCode() == DialogWrapper.OK_EXIT_CODE) {
@@ -33,12 +48,12 @@ public class CreateCommitAction extends AnAction implements DumbAware {
         }
     }
 
-    private CommitMessage parseExistingCommitMessage(CommitMessageI commitPanel) {
+    private CompletableFuture<CommitMessage> parseExistingCommitMessage(Project project, CommitMessageI commitPanel) {
         if (commitPanel instanceof CheckinProjectPanel) {
             String commitMessageString = ((CheckinProjectPanel) commitPanel).getCommitMessage();
-            return CommitMessage.parse(commitMessageString);
+            return CommitDialogModel.getInstance(project).parse(commitMessageString);
         }
-        return null;
+        return CompletableFuture.completedFuture(null);
     }
 
     @Nullable
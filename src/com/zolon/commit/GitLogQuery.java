@@ -2,16 +2,23 @@ package com.zolon.commit;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
-import static java.util.stream.Collectors.toList;
 
 /**
  * Base from <a href="https://github.com/MobileTribe/commit-template-idea-plugin">MobileTribe/commit-template-idea-plugin</a>
@@ -20,13 +27,114 @@ import static java.util.stream.Collectors.toList;
  * @author manoo
  */
 class GitLogQuery {
-    private static final String GIT_LOG_COMMAND = "git log --all --format=%s";
-    private static final Pattern COMMIT_FIRST_LINE_FORMAT = Pattern.compile("^[a-z]+\\((.+)\\):.*");
+    private static final List<String> GIT_LOG_COMMAND = Arrays.asList("git", "log", "--format=%H%x09%s");
+    private static final List<String> GIT_SHOW_COMMAND = Arrays.asList("git", "show", "-s", "--format=%B");
+    private static final List<String> GIT_UPSTREAM_COMMAND =
+            Arrays.asList("git", "rev-parse", "--abbrev-ref", "--symbolic-full-name", "@{upstream}");
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GitLogQuery watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ProcessBuilder.Redirect DISCARD = ProcessBuilder.Redirect.to(
+            new File(System.getProperty("os.name").contains("Windows") ? "NUL" : "/dev/null"));
+    private static final long SHOW_TIMEOUT_MILLIS = 2000;
+    private static final Pattern CONVENTIONAL_FIRST_LINE_FORMAT = Pattern.compile("^[a-z]+\\((.+)\\):.*");
 
     private final File workingDirectory;
+    private final Policy policy;
 
     GitLogQuery(File workingDirectory) {
+        this(workingDirectory, Policy.DEFAULT);
+    }
+
+    GitLogQuery(File workingDirectory, Policy policy) {
         this.workingDirectory = workingDirectory;
+        this.policy = policy;
+    }
+
+    /**
+     * How far back the history is scanned, from the cheapest to the widest.
+     */
+    enum Range {
+        /** current branch and its upstream, limited to {@link Policy#since} */
+        RECENT,
+        /** current branch and its upstream, whole history */
+        BRANCH,
+        /** every ref, as {@code --all} */
+        ALL
+    }
+
+    /**
+     * Bounds of the adaptive scan: every pass reads at most {@code maxCommits} subjects, the whole
+     * query stops after {@code timeBudgetMillis}, and a wider {@link Range} is only tried while fewer
+     * than {@code minScopes} distinct scopes have been found.
+     */
+    static class Policy {
+        static final Policy DEFAULT = new Policy(2000, "6.months.ago", 2000, 10);
+
+        final int maxCommits;
+        final String since;
+        final long timeBudgetMillis;
+        final int minScopes;
+
+        Policy(int maxCommits, String since, long timeBudgetMillis, int minScopes) {
+            this.maxCommits = maxCommits;
+            this.since = since;
+            this.timeBudgetMillis = timeBudgetMillis;
+            this.minScopes = minScopes;
+        }
+    }
+
+    /**
+     * The history window a result was actually read from.
+     */
+    static class Window {
+        private final Range range;
+        private final String since;
+        private final int maxCommits;
+        private final int scanned;
+        private final boolean timedOut;
+
+        Window(Range range, String since, int maxCommits, int scanned, boolean timedOut) {
+            this.range = range;
+            this.since = since;
+            this.maxCommits = maxCommits;
+            this.scanned = scanned;
+            this.timedOut = timedOut;
+        }
+
+        Range getRange() {
+            return range;
+        }
+
+        int getScanned() {
+            return scanned;
+        }
+
+        boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * @return the scanned range in words, e.g. "the current branch since 6.months.ago"
+         */
+        String describe() {
+            switch (range) {
+                case RECENT:
+                    return since == null ? "the current branch" : "the current branch since " + since;
+                case BRANCH:
+                    return "the current branch";
+                default:
+                    return "all branches";
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s since=%s max=%d scanned=%d%s",
+                    range, since == null ? "-" : since, maxCommits, scanned, timedOut ? " (timed out)" : "");
+        }
     }
 
     static class Result {
@@ -34,25 +142,58 @@ class GitLogQuery {
 
         private final int exitValue;
         private final List<String> logs;
+        private final Window window;
+        private final CommitIndex index;
 
         Result(int exitValue) {
-            this(exitValue, emptyList());
+            this(exitValue, emptyList(), null, new CommitIndex());
         }
 
         Result(int exitValue, List<String> logs) {
+            this(exitValue, logs, null, new CommitIndex());
+        }
+
+        Result(int exitValue, List<String> logs, Window window, CommitIndex index) {
             this.exitValue = exitValue;
             this.logs = logs;
+            this.window = window;
+            this.index = index;
         }
 
         boolean isSuccess() {
             return exitValue == 0;
         }
 
+        /**
+         * @return the window the logs were read from, {@code null} on error
+         */
+        Window getWindow() {
+            return window;
+        }
+
+        /**
+         * @return the scanned commits, for looking up a commit to revert
+         */
+        CommitIndex getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the scopes of both {@code [type](scope):} template headers and
+         * {@code type(scope):} conventional ones
+         */
         public Set<String> getScopes() {
             Set<String> scopes = new HashSet<>();
 
             this.logs.forEach(s -> {
-                Matcher matcher = COMMIT_FIRST_LINE_FORMAT.matcher(s);
+                Matcher matcher = CommitMessage.COMMIT_FIRST_LINE_FORMAT.matcher(s);
+                if (matcher.find()) {
+                    if (matcher.group(3) != null) {
+                        scopes.add(matcher.group(3));
+                    }
+                    return;
+                }
+                matcher = CONVENTIONAL_FIRST_LINE_FORMAT.matcher(s);
                 if (matcher.find()) {
                     scopes.add(matcher.group(1));
                 }
@@ -63,30 +204,161 @@ class GitLogQuery {
     }
 
     Result execute() {
+        long deadline = System.currentTimeMillis() + policy.timeBudgetMillis;
+        String upstream = upstream(deadline);
+
+        Result best = Result.ERROR;
+        int bestScopes = -1;
+        for (Range range : Range.values()) {
+            Result result = scan(range, upstream, deadline);
+            if (!result.isSuccess()) {
+                // no point widening: git itself is failing here
+                return bestScopes < 0 ? result : best;
+            }
+            int scopes = result.getScopes().size();
+            if (scopes > bestScopes) {
+                best = result;
+                bestScopes = scopes;
+            }
+            if (bestScopes >= policy.minScopes || result.getWindow().isTimedOut()) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Builds the argv directly, never through a shell: the upstream name comes from the repository
+     * and may contain shell metacharacters.
+     */
+    static List<String> command(Range range, Policy policy, String upstream) {
+        List<String> command = new ArrayList<>(GIT_LOG_COMMAND);
+        command.add("--max-count=" + policy.maxCommits);
+        if (range == Range.RECENT && policy.since != null) {
+            command.add("--since=" + policy.since);
+        }
+        if (range == Range.ALL) {
+            command.add("--all");
+        } else {
+            command.add("HEAD");
+            if (upstream != null && !upstream.startsWith("-")) {
+                command.add(upstream);
+            }
+        }
+        // revisions only, never paths
+        command.add("--");
+        return command;
+    }
+
+    Result scan(Range range, String upstream, long deadline) {
         try {
-            ProcessBuilder processBuilder;
-            String osName = System.getProperty("os.name");
-            if (osName.contains("Windows")) {
-                processBuilder = new ProcessBuilder("cmd", "/C", GIT_LOG_COMMAND);
-            } else {
-                processBuilder = new ProcessBuilder("sh", "-c", GIT_LOG_COMMAND);
+            Process process = start(workingDirectory, command(range, policy, upstream));
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> watchdog = watch(process, deadline, timedOut);
+
+            List<String> output = new ArrayList<>();
+            CommitIndex index = new CommitIndex();
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // <sha>\t<subject>
+                    int tab = line.indexOf('\t');
+                    String subject = line.substring(tab + 1);
+                    output.add(subject);
+                    if (tab > 0) {
+                        index.add(line.substring(0, tab), subject);
+                    }
+                }
+            } catch (IOException e) {
+                // stream closed by the watchdog: keep what was read so far
+                if (!timedOut.get()) {
+                    throw e;
+                }
             }
+            int exitValue = process.waitFor();
+            watchdog.cancel(false);
+
+            if (timedOut.get()) {
+                return new Result(0, output, window(range, output, true), index);
+            }
+            return new Result(exitValue, output, window(range, output, false), index);
+        } catch (Exception e) {
+            return Result.ERROR;
+        }
+    }
 
-            Process process = processBuilder
-                    .directory(workingDirectory)
-                    .start();
+    private Window window(Range range, List<String> output, boolean timedOut) {
+        return new Window(range, range == Range.RECENT ? policy.since : null, policy.maxCommits, output.size(), timedOut);
+    }
+
+    /**
+     * @return the full message of {@code sha}, or {@code null} if it cannot be read
+     */
+    String message(String sha) {
+        if (!sha.matches("[0-9a-f]{4,40}")) {
+            return null;
+        }
+        try {
+            List<String> command = new ArrayList<>(GIT_SHOW_COMMAND);
+            command.add(sha);
+            Process process = start(workingDirectory, command);
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> watchdog = watch(process, System.currentTimeMillis() + SHOW_TIMEOUT_MILLIS, timedOut);
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String message = reader.lines().collect(Collectors.joining("\n"));
+            int exitValue = process.waitFor();
+            watchdog.cancel(false);
 
-            List<String> output = reader.lines().collect(toList());
+            return exitValue == 0 && !timedOut.get() ? message : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
 
-            process.waitFor(2, TimeUnit.SECONDS);
-            process.destroy();
-            process.waitFor();
+    /**
+     * @return the upstream of the current branch, or {@code null} when it has none
+     */
+    String upstream(long deadline) {
+        try {
+            Process process = start(workingDirectory, GIT_UPSTREAM_COMMAND);
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> watchdog = watch(process, deadline, timedOut);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line = reader.readLine();
+            int exitValue = process.waitFor();
+            watchdog.cancel(false);
 
-            return new Result(process.exitValue(), output);
+            return exitValue == 0 && !timedOut.get() && line != null && !line.trim().isEmpty() ? line.trim() : null;
         } catch (Exception e) {
-            return Result.ERROR;
+            return null;
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Starts git from an argv, never through a shell. Stderr is discarded so that git cannot block
+     * on a full pipe nobody reads.
+     */
+    static Process start(File workingDirectory, List<String> command) throws IOException {
+        return new ProcessBuilder(command)
+                .directory(workingDirectory)
+                .redirectError(DISCARD)
+                .start();
+    }
+
+    /**
+     * Kills {@code process} if it is still running at {@code deadline}, and then sets {@code timedOut}.
+     * <p>
+     * Reads can block for as long as git prints nothing, so deadlines are enforced by killing the
+     * process rather than by checking the clock between reads.
+     */
+    static ScheduledFuture<?> watch(Process process, long deadline, AtomicBoolean timedOut) {
+        return WATCHDOG.schedule(() -> {
+            if (process.isAlive()) {
+                timedOut.set(true);
+                process.destroy();
+            }
+        }, Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+    }
+
+}
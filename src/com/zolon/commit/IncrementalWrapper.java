@@ -0,0 +1,143 @@
+package com.zolon.commit;
+
+import java.util.Arrays;
+
+/**
+ * Wraps text exactly like {@link org.apache.commons.lang.WordUtils#wrap(String, int)}, but re-wraps
+ * only the lines around what changed since the previous call.
+ * <p>
+ * Greedy wrapping is a sequence of decisions, each starting at a line start and looking at most up
+ * to a known index. Decisions that only looked at the unchanged prefix are kept as they were, and
+ * wrapping stops as soon as it reaches a line start in the unchanged suffix that was also a line
+ * start before the edit: everything after it is reused from the previous output.
+ *
+ * @author manoo
+ */
+class IncrementalWrapper {
+    private final int wrapLength;
+    private final String newLine = System.lineSeparator();
+
+    private String text = NormalizeUtils.EMPTY_STR;
+    private String wrapped = NormalizeUtils.EMPTY_STR;
+
+    // one entry per line start: source offset, output length so far, and the last source index
+    // the wrapping decision made there depended on
+    private int[] offsets = {0};
+    private int[] outputs = {0};
+    private int[] extents = {0};
+    private int size = 1;
+
+    IncrementalWrapper(int wrapLength) {
+        this.wrapLength = Math.max(wrapLength, 1);
+    }
+
+    String wrap(String input) {
+        if (input.equals(text)) {
+            return wrapped;
+        }
+        int prefix = commonPrefix(text, input);
+        int suffix = commonSuffix(text, input, prefix);
+        int delta = input.length() - text.length();
+
+        int restart = 0;
+        while (restart < size - 1 && extents[restart] < prefix) {
+            restart++;
+        }
+
+        String oldWrapped = wrapped;
+        int[] oldOffsets = offsets;
+        int[] oldOutputs = outputs;
+        int[] oldExtents = extents;
+        int oldSize = size;
+
+        offsets = Arrays.copyOf(oldOffsets, Math.max(oldOffsets.length, restart + 16));
+        outputs = Arrays.copyOf(oldOutputs, offsets.length);
+        extents = Arrays.copyOf(oldExtents, offsets.length);
+        size = restart + 1;
+
+        StringBuilder builder = new StringBuilder(input.length() + input.length() / wrapLength * newLine.length() + 16);
+        builder.append(oldWrapped, 0, oldOutputs[restart]);
+
+        int len = input.length();
+        int offset = oldOffsets[restart];
+        while (len - offset > wrapLength) {
+            if (input.charAt(offset) == ' ') {
+                offset++;
+                continue;
+            }
+            int extent = wrapLength + offset;
+            int spaceToWrapAt = input.lastIndexOf(' ', extent);
+            if (spaceToWrapAt < offset) {
+                spaceToWrapAt = input.indexOf(' ', extent);
+                if (spaceToWrapAt < 0) {
+                    builder.append(input, offset, len);
+                    offset = len;
+                    break;
+                }
+                extent = spaceToWrapAt;
+            }
+            builder.append(input, offset, spaceToWrapAt).append(newLine);
+            extents[size - 1] = extent;
+            offset = spaceToWrapAt + 1;
+
+            if (offset >= len - suffix) {
+                int resync = Arrays.binarySearch(oldOffsets, restart + 1, oldSize, offset - delta);
+                if (resync > 0) {
+                    return splice(input, builder, oldWrapped, oldOffsets, oldOutputs, oldExtents, oldSize, resync, delta);
+                }
+            }
+            push(offset, builder.length());
+        }
+        builder.append(input, offset, len);
+        extents[size - 1] = len;
+
+        return done(input, builder.toString());
+    }
+
+    private String splice(String input, StringBuilder builder, String oldWrapped,
+                          int[] oldOffsets, int[] oldOutputs, int[] oldExtents, int oldSize,
+                          int resync, int delta) {
+        int shift = builder.length() - oldOutputs[resync];
+        builder.append(oldWrapped, oldOutputs[resync], oldWrapped.length());
+        for (int i = resync; i < oldSize; i++) {
+            push(oldOffsets[i] + delta, oldOutputs[i] + shift);
+            extents[size - 1] = oldExtents[i] + delta;
+        }
+        return done(input, builder.toString());
+    }
+
+    private void push(int offset, int output) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            outputs = Arrays.copyOf(outputs, size * 2);
+            extents = Arrays.copyOf(extents, size * 2);
+        }
+        offsets[size] = offset;
+        outputs[size] = output;
+        size++;
+    }
+
+    private String done(String input, String output) {
+        this.text = input;
+        this.wrapped = output;
+        return output;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int commonSuffix(String a, String b, int prefix) {
+        int max = Math.min(a.length(), b.length()) - prefix;
+        int i = 0;
+        while (i < max && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -20,6 +20,7 @@ public class NormalizeUtils {
     public static final String RELATED_ISSUE_PREFIX = "Related: ";
     public static final String RELATED_ISSUE_SPLIT = ",";
     public static final String NUM_ISSUE_PREFIX = "#";
+    public static final String REVERTS_COMMIT_PREFIX = "This reverts commit ";
     public static final String EMPTY_STR = "";
 
     public static String normalizeHeader(ChangeType type, String scope, String subject) {
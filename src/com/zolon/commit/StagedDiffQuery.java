@@ -0,0 +1,261 @@
+package com.zolon.commit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Summarizes the staged change per module, to pre-fill the details of large commits.
+ * <p>
+ * {@code --raw} records give the status of each file and {@code --numstat} records its line delta;
+ * both are aggregated by directory prefix as they stream in, so memory depends on the number of
+ * modules, not on the size of the diff.
+ *
+ * @author manoo
+ */
+class StagedDiffQuery {
+    private static final List<String> GIT_DIFF_COMMAND =
+            Arrays.asList("git", "diff", "--cached", "--raw", "--numstat", "-z");
+    private static final long TIME_BUDGET_MILLIS = 5000;
+    private static final String ROOT_MODULE = ".";
+    private static final int MAX_MODULES = 10;
+
+    private final File workingDirectory;
+    private final int depth;
+
+    StagedDiffQuery(File workingDirectory) {
+        this(workingDirectory, 1);
+    }
+
+    StagedDiffQuery(File workingDirectory, int depth) {
+        this.workingDirectory = workingDirectory;
+        this.depth = depth;
+    }
+
+    static class Module {
+        private final String name;
+        private int added;
+        private int modified;
+        private int deleted;
+        private long insertions;
+        private long deletions;
+
+        Module(String name) {
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getFiles() {
+            return added + modified + deleted;
+        }
+
+        int getAdded() {
+            return added;
+        }
+
+        int getModified() {
+            return modified;
+        }
+
+        int getDeleted() {
+            return deleted;
+        }
+
+        long getInsertions() {
+            return insertions;
+        }
+
+        long getDeletions() {
+            return deletions;
+        }
+    }
+
+    static class Result {
+        static Result ERROR = new Result(-1, new HashMap<>());
+
+        private final int exitValue;
+        private final Map<String, Module> modules;
+
+        Result(int exitValue, Map<String, Module> modules) {
+            this.exitValue = exitValue;
+            this.modules = modules;
+        }
+
+        boolean isSuccess() {
+            return exitValue == 0;
+        }
+
+        /*
+         * example output:
+         * Staged 44 files in 3 modules: 12 added, 30 modified, 2 deleted (+1234 -567 lines).
+         * src: 40 files, +1200 -500; tests: 3 files, +30 -60; resources: 1 file, +4 -7.
+         */
+        String getSummary() {
+            if (modules.isEmpty()) {
+                return NormalizeUtils.EMPTY_STR;
+            }
+            Module total = new Module(ROOT_MODULE);
+            modules.values().forEach(module -> {
+                total.added += module.added;
+                total.modified += module.modified;
+                total.deleted += module.deleted;
+                total.insertions += module.insertions;
+                total.deletions += module.deletions;
+            });
+
+            StringBuilder builder = new StringBuilder()
+                    .append("Staged ").append(files(total.getFiles()))
+                    .append(" in ").append(modules.size()).append(modules.size() == 1 ? " module: " : " modules: ")
+                    .append(total.added).append(" added, ")
+                    .append(total.modified).append(" modified, ")
+                    .append(total.deleted).append(" deleted (")
+                    .append('+').append(total.insertions).append(" -").append(total.deletions).append(" lines).");
+
+            List<Module> byChurn = new ArrayList<>(modules.values());
+            byChurn.sort((a, b) -> Long.compare(b.insertions + b.deletions, a.insertions + a.deletions));
+            String separator = " ";
+            for (Module module : byChurn.subList(0, Math.min(MAX_MODULES, byChurn.size()))) {
+                builder.append(separator)
+                        .append(module.name).append(": ").append(files(module.getFiles()))
+                        .append(", +").append(module.insertions).append(" -").append(module.deletions);
+                separator = "; ";
+            }
+            if (byChurn.size() > MAX_MODULES) {
+                builder.append("; ").append(byChurn.size() - MAX_MODULES).append(" more");
+            }
+            return builder.append('.').toString();
+        }
+
+        private static String files(int count) {
+            return count + (count == 1 ? " file" : " files");
+        }
+    }
+
+    /**
+     * @return the summary of the staged change, {@link Result#ERROR} if git fails or does not finish
+     * within {@link #TIME_BUDGET_MILLIS}: a partial summary would under-report the change
+     */
+    Result execute() {
+        try {
+            Process process = GitLogQuery.start(workingDirectory, GIT_DIFF_COMMAND);
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> watchdog = GitLogQuery.watch(process, System.currentTimeMillis() + TIME_BUDGET_MILLIS, timedOut);
+
+            Map<String, Module> modules;
+            try {
+                modules = parse(process.getInputStream(), depth);
+            } catch (IOException e) {
+                // stream closed by the watchdog
+                if (!timedOut.get()) {
+                    throw e;
+                }
+                modules = new HashMap<>();
+            }
+            int exitValue = process.waitFor();
+            watchdog.cancel(false);
+
+            return timedOut.get() ? Result.ERROR : new Result(exitValue, modules);
+        } catch (Exception e) {
+            return Result.ERROR;
+        }
+    }
+
+    /**
+     * Reads {@code --raw --numstat -z} output, one NUL-terminated token at a time.
+     */
+    static Map<String, Module> parse(InputStream input, int depth) throws IOException {
+        Map<String, Module> modules = new HashMap<>();
+        byte[] buffer = new byte[1 << 16];
+        ByteArrayOutputStream token = new ByteArrayOutputStream(256);
+
+        // what the next path token belongs to
+        char status = 0;
+        long insertions = 0;
+        long deletions = 0;
+        boolean numstat = false;
+        int paths = 0;
+
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != 0) {
+                    continue;
+                }
+                token.write(buffer, start, i - start);
+                start = i + 1;
+                String value = token.toString(StandardCharsets.UTF_8.name());
+                token.reset();
+
+                if (paths > 0) {
+                    // renames and copies list the old path first; only the new one counts
+                    if (--paths == 0) {
+                        Module module = modules.computeIfAbsent(module(value, depth), Module::new);
+                        if (numstat) {
+                            module.insertions += insertions;
+                            module.deletions += deletions;
+                        } else if (status == 'A' || status == 'C') {
+                            module.added++;
+                        } else if (status == 'D') {
+                            module.deleted++;
+                        } else {
+                            module.modified++;
+                        }
+                    }
+                } else if (value.startsWith(":")) {
+                    // :<old mode> <new mode> <old sha> <new sha> <status>[score]
+                    status = value.charAt(value.lastIndexOf(' ') + 1);
+                    numstat = false;
+                    paths = status == 'R' || status == 'C' ? 2 : 1;
+                } else {
+                    // <insertions>\t<deletions>\t<path>, path empty for renames; "-" for binaries
+                    int first = value.indexOf('\t');
+                    int second = value.indexOf('\t', first + 1);
+                    if (first < 0 || second < 0) {
+                        continue;
+                    }
+                    insertions = count(value.substring(0, first));
+                    deletions = count(value.substring(first + 1, second));
+                    numstat = true;
+                    if (second + 1 < value.length()) {
+                        Module module = modules.computeIfAbsent(module(value.substring(second + 1), depth), Module::new);
+                        module.insertions += insertions;
+                        module.deletions += deletions;
+                    } else {
+                        paths = 2;
+                    }
+                }
+            }
+            token.write(buffer, start, read - start);
+        }
+        return modules;
+    }
+
+    private static String module(String path, int depth) {
+        int end = -1;
+        for (int i = 0; i < depth; i++) {
+            int next = path.indexOf('/', end + 1);
+            if (next < 0) {
+                break;
+            }
+            end = next;
+        }
+        return end < 0 ? ROOT_MODULE : path.substring(0, end);
+    }
+
+    private static long count(String value) {
+        return NormalizeUtils.isNumeric(value) ? Long.parseLong(value) : 0;
+    }
+}
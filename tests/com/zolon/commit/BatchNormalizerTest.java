@@ -0,0 +1,150 @@
+package com.zolon.commit;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.zolon.commit.NormalizeUtils.BROKEN_CHANGES_PREFIX;
+import static com.zolon.commit.NormalizeUtils.RELATED_ISSUE_PREFIX;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author manoo
+ */
+public class BatchNormalizerTest {
+
+    @Test
+    public void testNormalize_conventionalHeader() {
+        assertEquals("[fix](ngStyle): skip setting empty value",
+                BatchNormalizer.normalize("fix(ngStyle): skip setting empty value\n"));
+        assertEquals("[feat]: break everything\n\n" + BROKEN_CHANGES_PREFIX + "break everything",
+                BatchNormalizer.normalize("Feat!: break everything"));
+        assertEquals("[feat](api): drop v1\n\n" + BROKEN_CHANGES_PREFIX + "v1 clients must upgrade",
+                BatchNormalizer.normalize("feat(api)!: drop v1\n\nBREAKING CHANGE: v1 clients must upgrade"));
+    }
+
+    @Test
+    public void testNormalize_reorderFooters() {
+        String message = "[feat]($route): add reloadOnUrl\n" +
+                "\n" +
+                RELATED_ISSUE_PREFIX + "#7925\n" +
+                BROKEN_CHANGES_PREFIX + "routes reload\n" +
+                "\n" +
+                "Enables users to specify that a particular route should not be reloaded after a URL change.";
+        String expected = "[feat]($route): add reloadOnUrl\n" +
+                "\n" +
+                "Enables users to specify that a particular route should not be reloaded\n" +
+                "after a URL change.\n" +
+                "\n" +
+                BROKEN_CHANGES_PREFIX + "routes reload\n" +
+                RELATED_ISSUE_PREFIX + "#7925";
+        assertEquals(expected, BatchNormalizer.normalize(message));
+    }
+
+    @Test
+    public void testNormalize_keepsParagraphs() {
+        String message = "fix(parser): handle empty scopes\n" +
+                "\n" +
+                "The parser used to fail on headers with empty parentheses and then drop the whole message.\n" +
+                "\n" +
+                "Affected headers:\n" +
+                "- fix(): subject\n" +
+                "- feat( ): subject\n" +
+                "\n" +
+                "```\n" +
+                "git log --format=%s\n" +
+                "\n" +
+                "git log --format=%B\n" +
+                "```";
+        String expected = "[fix](parser): handle empty scopes\n" +
+                "\n" +
+                "The parser used to fail on headers with empty parentheses and then drop\n" +
+                "the whole message.\n" +
+                "\n" +
+                "Affected headers:\n" +
+                "- fix(): subject\n" +
+                "- feat( ): subject\n" +
+                "\n" +
+                "```\n" +
+                "git log --format=%s\n" +
+                "\n" +
+                "git log --format=%B\n" +
+                "```";
+        assertEquals(expected, BatchNormalizer.normalize(message));
+    }
+
+    @Test
+    public void testNormalize_keepsTrailers() {
+        String message = "[fix]: close the stream\n" +
+                "\n" +
+                RELATED_ISSUE_PREFIX + "#12\n" +
+                "\n" +
+                "Readers leaked a file handle.\n" +
+                "\n" +
+                "Signed-off-by: Jane Doe <jane@example.com>\n" +
+                "Co-authored-by: John Doe <john@example.com>\n" +
+                "Change-Id: I8473b95934b5732ac55d26311a706c9c2bde9940";
+        String expected = "[fix]: close the stream\n" +
+                "\n" +
+                "Readers leaked a file handle.\n" +
+                "\n" +
+                RELATED_ISSUE_PREFIX + "#12\n" +
+                "Signed-off-by: Jane Doe <jane@example.com>\n" +
+                "Co-authored-by: John Doe <john@example.com>\n" +
+                "Change-Id: I8473b95934b5732ac55d26311a706c9c2bde9940";
+        assertEquals(expected, BatchNormalizer.normalize(message));
+        assertNull(BatchNormalizer.normalize(expected));
+        assertTrue(new CommitMessageValidator().validate(expected).isValid());
+    }
+
+    @Test
+    public void testNormalize_wrapsTemplateMessages() {
+        String message = "[docs]: edit README\n" +
+                "\n" +
+                "First paragraph, kept short.\n" +
+                "\n" +
+                "Second paragraph, a line that was never wrapped to the template width because it predates it.\n" +
+                "\n" +
+                BROKEN_CHANGES_PREFIX + "none\n" +
+                RELATED_ISSUE_PREFIX + "#3";
+        String expected = "[docs]: edit README\n" +
+                "\n" +
+                "First paragraph, kept short.\n" +
+                "\n" +
+                "Second paragraph, a line that was never wrapped to the template width\n" +
+                "because it predates it.\n" +
+                "\n" +
+                BROKEN_CHANGES_PREFIX + "none\n" +
+                RELATED_ISSUE_PREFIX + "#3";
+        assertEquals(expected, BatchNormalizer.normalize(message));
+        assertNull(BatchNormalizer.normalize(expected));
+    }
+
+    @Test
+    public void testNormalize_unchanged() {
+        assertNull(BatchNormalizer.normalize("[docs]: edit README"));
+        assertNull(BatchNormalizer.normalize("Merge branch 'master' into develop"));
+        assertNull(BatchNormalizer.normalize("oops: unknown type"));
+    }
+
+    @Test
+    public void testRun_keepsOrder() throws Exception {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            input.append(i).append("\nfix(core): change ").append(i).append('\0');
+            if (i % 3 == 0) {
+                input.append("skip").append(i).append("\n[docs]: edit README\n").append('\0');
+            }
+            expected.append(i).append("\n[fix](core): change ").append(i).append('\0');
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BatchNormalizer(4, 2).run(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), output);
+        assertEquals(expected.toString(), output.toString(StandardCharsets.UTF_8.name()));
+    }
+}
@@ -0,0 +1,31 @@
+package com.zolon.commit;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author manoo
+ */
+public class CommitIndexTest {
+
+    @Test
+    public void testFind() {
+        CommitIndex index = new CommitIndex();
+        index.add("0123abcd0123abcd0123abcd0123abcd0123abcd", "[fix](ngStyle): skip setting empty value");
+        index.add("0123ffff0123abcd0123abcd0123abcd0123abcd", "[feat]($route): add reloadOnUrl");
+        index.add("beef0000ca11ab1e0123abcd0123abcd0123abcd", "[docs]: mention 0123abcd in README");
+
+        List<CommitIndex.Entry> bySha = index.find("0123abcd", 10);
+        assertEquals(2, bySha.size());
+        assertEquals("[fix](ngStyle): skip setting empty value", bySha.get(0).getSubject());
+        assertEquals("[docs]: mention 0123abcd in README", bySha.get(1).getSubject());
+
+        assertEquals(3, index.find("0123", 10).size());
+        assertEquals(1, index.find("0123", 1).size());
+        assertEquals("0123ffff0123abcd0123abcd0123abcd0123abcd", index.find("RELOADONURL", 10).get(0).getSha());
+        assertEquals(0, index.find(" ", 10).size());
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 import static com.zolon.commit.NormalizeUtils.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Base from <a href="https://github.com/MobileTribe/commit-template-idea-plugin">MobileTribe/commit-template-idea-plugin</a>
@@ -155,6 +156,35 @@ public class CommitMessageTest {
         check(commitMessage, expected);
     }
 
+    @Test
+    public void testRevert() {
+        CommitMessage commitMessage = CommitMessage.revert("0123abcd",
+                "[fix](ngStyle): skip setting empty value\n\nSome details.\n\n" + RELATED_ISSUE_PREFIX + "#16709",
+                true);
+        String expected = "[revert]: [fix](ngStyle): skip setting empty value\n" +
+                "\n" +
+                REVERTS_COMMIT_PREFIX + "0123abcd.\n" +
+                "\n" +
+                RELATED_ISSUE_PREFIX + "#16709";
+        assertEquals(expected, commitMessage.toString());
+    }
+
+    @Test
+    public void testRevert_longHeader() {
+        String header = "[feat](compiler): support the new template syntax in every supported browser";
+        CommitMessage commitMessage = CommitMessage.revert("0123abcd", header, true);
+        String expected = "[revert]: support the new template syntax in every supported browser\n" +
+                "\n" +
+                REVERTS_COMMIT_PREFIX + "0123abcd.";
+        assertEquals(expected, commitMessage.toString());
+
+        String subject = "support the new template syntax in every supported browser, then some more";
+        String revert = CommitMessage.revert("0123abcd", "[feat]: " + subject, true).toString();
+        String revertHeader = revert.substring(0, revert.indexOf('\n'));
+        assertEquals(MAX_LINE_LENGTH, revertHeader.length());
+        assertTrue(revertHeader.endsWith("..."));
+    }
+
     private void check(CommitMessage commitMessage, String output) {
         checkFormat(commitMessage, output);
         checkParse(commitMessage, output);
@@ -0,0 +1,81 @@
+package com.zolon.commit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author manoo
+ */
+public class CommitMessageValidatorTest {
+
+    private final CommitMessageValidator validator = new CommitMessageValidator();
+
+    @Test
+    public void testValidate_valid() {
+        CommitMessageValidator.Validation validation = validator.validate(
+                "[fix](ngStyle): skip setting empty value\n" +
+                "\n" +
+                "Previously, all the properties in oldStyles are set to empty value once.\n" +
+                "\n" +
+                "Related: #16709\n" +
+                "Related: #16710");
+        assertTrue(validation.getProblems().toString(), validation.isValid());
+        assertEquals(ChangeType.FIX, validation.getMessage().getType());
+    }
+
+    @Test
+    public void testValidate_invalidHeader() {
+        assertFalse(validator.validate("fix: free-form subject").isValid());
+        assertNull(validator.validate("[oops]: unknown type").getMessage());
+    }
+
+    @Test
+    public void testValidate_longSubject() {
+        String subject = "this subject is far too long to fit in the first line of a commit message";
+        assertFalse(validator.validate("[feat]: " + subject).isValid());
+    }
+
+    @Test
+    public void testValidate_footer() {
+        assertFalse(validator.validate("[feat]: subject\n\nRelated: #1\nsome text").isValid());
+        assertFalse(validator.validate("[feat]: subject\n\nRelated: #1\nBroken: api").isValid());
+        assertFalse(validator.validate("[feat]: subject\n\nRelated:#1").isValid());
+        assertFalse(validator.validate("[feat]: subject\ndetails without blank line").isValid());
+        assertTrue(validator.validate("[feat]: subject\n\nRelated: #1\nSigned-off-by: Jane Doe <jane@example.com>").isValid());
+    }
+
+    @Test
+    public void testValidate_largeMessageLatency() {
+        StringBuilder details = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            details.append("Line ").append(i).append(" of a very long body that the dialog validates on every edit.\n");
+        }
+        String message = "[feat](core): validate large messages\n\n" + details + "\nRelated: #1";
+
+        // distinct texts, so every call misses the cache like a keystroke does
+        for (int i = 0; i < 200; i++) {
+            validator.validate(message + i);
+        }
+        // best of a few rounds, so a GC pause or a busy machine does not fail the build
+        long averageMicros = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            String[] edits = new String[100];
+            for (int i = 0; i < edits.length; i++) {
+                edits[i] = message + round + "," + i;
+            }
+            long started = System.nanoTime();
+            for (String edit : edits) {
+                assertTrue(validator.validate(edit).isValid());
+            }
+            averageMicros = Math.min(averageMicros, (System.nanoTime() - started) / edits.length / 1000);
+        }
+        assertTrue("validation took " + averageMicros + " us on average", averageMicros < 1000);
+    }
+
+    @Test
+    public void testValidate_cached() {
+        String message = "[docs]: edit README";
+        assertSame(validator.validate(message), validator.validate(new String(message)));
+    }
+}
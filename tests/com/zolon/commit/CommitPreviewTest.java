@@ -0,0 +1,39 @@
+package com.zolon.commit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author manoo
+ */
+public class CommitPreviewTest {
+
+    @Test
+    public void testRender_sameAsCommitMessage() {
+        CommitPreview preview = new CommitPreview();
+        check(preview, ChangeType.FIX, "ngStyle", "skip setting empty value",
+                "Previously, all the properties in oldStyles are set to empty value once. Using AngularJS with jQuery 3.3.1, this disables the CSS transition as reported in jquery/jquery#4185.",
+                "", "16709", true);
+        check(preview, ChangeType.FIX, "ngStyle", "skip setting empty value",
+                "Previously, all the properties in oldStyles are set to an empty value once. Using AngularJS with jQuery 3.3.1, this disables the CSS transition as reported in jquery/jquery#4185.",
+                "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.",
+                "16709, #16710", true);
+        check(preview, ChangeType.FEAT, null, "break everything",
+                "Previously, all the properties in oldStyles are set to an empty value once. Using AngularJS with jQuery 3.3.1, this disables the CSS transition as reported in jquery/jquery#4185.",
+                "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.",
+                "", false);
+        check(preview, ChangeType.DOCS, "", "edit README", "", "", "", true);
+    }
+
+    private void check(CommitPreview preview, ChangeType type, String scope, String subject,
+                       String details, String broken, String related, boolean wrapText) {
+        preview.setHeader(type, scope, subject);
+        preview.setDetails(details, wrapText);
+        preview.setBroken(broken, wrapText);
+        preview.setRelated(related);
+
+        CommitMessage expected = new CommitMessage(type, scope, subject, details, broken, related, wrapText);
+        assertEquals(expected.toString(), preview.render());
+    }
+}
@@ -4,6 +4,14 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Base from <a href="https://github.com/MobileTribe/commit-template-idea-plugin">MobileTribe/commit-template-idea-plugin</a>
@@ -25,6 +33,118 @@ public class GitLogQueryTest {
 
         System.out.println(result.isSuccess());
         System.out.println(result.getScopes());
+        System.out.println(result.getWindow());
+    }
+
+    @Test
+    public void testCommand_widensWindow() {
+        GitLogQuery.Policy policy = new GitLogQuery.Policy(500, "3.months.ago", 1000, 5);
+
+        assertEquals(Arrays.asList("git", "log", "--format=%H%x09%s", "--max-count=500", "--since=3.months.ago",
+                "HEAD", "origin/master", "--"),
+                GitLogQuery.command(GitLogQuery.Range.RECENT, policy, "origin/master"));
+        assertEquals(Arrays.asList("git", "log", "--format=%H%x09%s", "--max-count=500", "HEAD", "--"),
+                GitLogQuery.command(GitLogQuery.Range.BRANCH, policy, null));
+        assertEquals(Arrays.asList("git", "log", "--format=%H%x09%s", "--max-count=500", "--all", "--"),
+                GitLogQuery.command(GitLogQuery.Range.ALL, policy, "origin/master"));
+    }
+
+    @Test
+    public void testCommand_upstreamIsOneArgument() {
+        GitLogQuery.Policy policy = new GitLogQuery.Policy(500, null, 1000, 5);
+
+        assertEquals(Arrays.asList("git", "log", "--format=%H%x09%s", "--max-count=500", "HEAD", "origin/x;id>pwned", "--"),
+                GitLogQuery.command(GitLogQuery.Range.BRANCH, policy, "origin/x;id>pwned"));
+        assertEquals(Arrays.asList("git", "log", "--format=%H%x09%s", "--max-count=500", "HEAD", "--"),
+                GitLogQuery.command(GitLogQuery.Range.BRANCH, policy, "--output=/tmp/x"));
+    }
+
+    @Test
+    public void testExecute_stopsAtMinScopes() {
+        StubQuery query = new StubQuery(3,
+                pass(GitLogQuery.Range.RECENT, false, "feat(a): x", "fix(b): y", "docs(c): z"),
+                pass(GitLogQuery.Range.BRANCH, false, "feat(d): x"));
+
+        GitLogQuery.Result result = query.execute();
+
+        assertEquals(GitLogQuery.Range.RECENT, result.getWindow().getRange());
+        assertEquals(Collections.singletonList(GitLogQuery.Range.RECENT), query.scanned);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testExecute_countsTemplateScopes() {
+        StubQuery query = new StubQuery(3,
+                pass(GitLogQuery.Range.RECENT, false, "[fix](a): x", "[feat](b): y", "[docs]: z", "chore(c): w"),
+                pass(GitLogQuery.Range.BRANCH, false, "[fix](d): x"));
+
+        GitLogQuery.Result result = query.execute();
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), result.getScopes());
+        assertEquals(Collections.singletonList(GitLogQuery.Range.RECENT), query.scanned);
+    }
+
+    @Test
+    public void testExecute_keepsBestPass() {
+        StubQuery query = new StubQuery(10,
+                pass(GitLogQuery.Range.RECENT, false, "feat(a): x"),
+                pass(GitLogQuery.Range.BRANCH, false, "feat(a): x", "fix(b): y"),
+                pass(GitLogQuery.Range.ALL, false, "feat(a): x"));
+
+        GitLogQuery.Result result = query.execute();
+
+        assertEquals(GitLogQuery.Range.BRANCH, result.getWindow().getRange());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), result.getScopes());
+        assertEquals(3, query.scanned.size());
+    }
+
+    @Test
+    public void testExecute_stopsWhenPassTimesOut() {
+        StubQuery query = new StubQuery(10,
+                pass(GitLogQuery.Range.RECENT, false, "feat(a): x"),
+                pass(GitLogQuery.Range.BRANCH, true, "feat(a): x", "fix(b): y"),
+                pass(GitLogQuery.Range.ALL, false, "feat(a): x", "fix(b): y", "docs(c): z"));
+
+        GitLogQuery.Result result = query.execute();
+
+        assertTrue(result.getWindow().isTimedOut());
+        assertEquals(Arrays.asList(GitLogQuery.Range.RECENT, GitLogQuery.Range.BRANCH), query.scanned);
+    }
+
+    @Test
+    public void testExecute_keepsBestPassWhenGitFails() {
+        StubQuery query = new StubQuery(10,
+                pass(GitLogQuery.Range.RECENT, false, "feat(a): x"),
+                GitLogQuery.Result.ERROR);
+
+        GitLogQuery.Result result = query.execute();
+
+        assertTrue(result.isSuccess());
+        assertEquals(GitLogQuery.Range.RECENT, result.getWindow().getRange());
+    }
+
+    private static GitLogQuery.Result pass(GitLogQuery.Range range, boolean timedOut, String... subjects) {
+        GitLogQuery.Window window = new GitLogQuery.Window(range, null, 100, subjects.length, timedOut);
+        return new GitLogQuery.Result(0, Arrays.asList(subjects), window, new CommitIndex());
+    }
+
+    private static class StubQuery extends GitLogQuery {
+        private final List<Result> passes;
+        private final List<Range> scanned = new ArrayList<>();
+
+        StubQuery(int minScopes, Result... passes) {
+            super(new File("."), new Policy(100, "1.month.ago", 1000, minScopes));
+            this.passes = Arrays.asList(passes);
+        }
+
+        @Override
+        String upstream(long deadline) {
+            return null;
+        }
+
+        @Override
+        Result scan(Range range, String upstream, long deadline) {
+            scanned.add(range);
+            return passes.get(scanned.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.zolon.commit;
+
+import org.apache.commons.lang.WordUtils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.zolon.commit.NormalizeUtils.MAX_LINE_LENGTH;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author manoo
+ */
+public class IncrementalWrapperTest {
+
+    private static final String[] WORDS = {
+            "a", "lorem", "ipsum", "dolor", "sit", "amet,", "consectetur", "adipiscing", "", "elit.",
+            "https://github.com/MobileTribe/commit-template-idea-plugin/blob/master/src/main/java/Foo.java"
+    };
+
+    @Test
+    public void testWrap_sameAsWordUtils() {
+        Random random = new Random(42);
+        IncrementalWrapper wrapper = new IncrementalWrapper(MAX_LINE_LENGTH);
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 2000; i++) {
+            int at = random.nextInt(text.length() + 1);
+            if (random.nextInt(4) == 0 && text.length() > 0) {
+                text.delete(at, Math.min(text.length(), at + random.nextInt(40)));
+            } else {
+                text.insert(at, WORDS[random.nextInt(WORDS.length)] + " ");
+            }
+            String input = text.toString();
+            assertEquals(WordUtils.wrap(input, MAX_LINE_LENGTH), wrapper.wrap(input));
+        }
+    }
+
+    @Test
+    public void testWrap_replaceWhole() {
+        IncrementalWrapper wrapper = new IncrementalWrapper(10);
+        assertEquals(WordUtils.wrap("one two three four five", 10), wrapper.wrap("one two three four five"));
+        assertEquals(WordUtils.wrap("six seven", 10), wrapper.wrap("six seven"));
+        assertEquals("", wrapper.wrap(""));
+    }
+}
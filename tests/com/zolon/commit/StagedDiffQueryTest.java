@@ -0,0 +1,57 @@
+package com.zolon.commit;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author manoo
+ */
+public class StagedDiffQueryTest {
+
+    @Test
+    @Ignore("manual testing")
+    public void testExecute() {
+        StagedDiffQuery.Result result = new StagedDiffQuery(new File("<absolute path>")).execute();
+
+        System.out.println(result.isSuccess());
+        System.out.println(result.getSummary());
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        String output =
+                ":000000 100644 0000000 1111111 A\0src/com/Foo.java\0" +
+                ":100644 100644 2222222 3333333 M\0src/com/Bar.java\0" +
+                ":100644 000000 4444444 0000000 D\0tests/BarTest.java\0" +
+                ":100644 100644 5555555 6666666 R087\0src/Old.java\0resources/New.java\0" +
+                ":100644 100644 7777777 8888888 M\0README.md\0" +
+                "10\t0\tsrc/com/Foo.java\0" +
+                "3\t2\tsrc/com/Bar.java\0" +
+                "0\t7\ttests/BarTest.java\0" +
+                "1\t1\t\0src/Old.java\0resources/New.java\0" +
+                "-\t-\tREADME.md\0";
+        Map<String, StagedDiffQuery.Module> modules = StagedDiffQuery.parse(
+                new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), 1);
+
+        StagedDiffQuery.Module src = modules.get("src");
+        assertEquals(1, src.getAdded());
+        assertEquals(1, src.getModified());
+        assertEquals(13, src.getInsertions());
+        assertEquals(2, src.getDeletions());
+        assertEquals(1, modules.get("tests").getDeleted());
+        assertEquals(1, modules.get("resources").getModified());
+        assertEquals(1, modules.get("resources").getInsertions());
+        assertEquals(1, modules.get(".").getModified());
+
+        assertEquals("Staged 5 files in 4 modules: 1 added, 3 modified, 1 deleted (+14 -10 lines)." +
+                        " src: 2 files, +13 -2; tests: 1 file, +0 -7; resources: 1 file, +1 -1; .: 1 file, +0 -0.",
+                new StagedDiffQuery.Result(0, modules).getSummary());
+    }
+}